@@ -0,0 +1,285 @@
+plugins {
+    id("java")
+    id("maven-publish")
+    id("signing")
+    id("checkstyle")
+    id("jacoco")
+    id("com.github.spotbugs") version "6.0.18"
+    id("org.checkerframework") version "0.6.41"
+    id("com.gradleup.shadow") version "8.3.8"
+}
+
+repositories {
+    // Use Maven Central for resolving dependencies.
+    mavenCentral()
+}
+
+group = "com.rokoder.concurrency"
+version = "1.0.0"
+val artifactName = "context-preserved-slf4j-agent"
+val agentClass = "com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.Slf4jMdcPreservedAgent"
+
+java {
+    withJavadocJar()
+    withSourcesJar()
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// Benchmarks live in their own source set so they never end up in the agent jar.
+val jmh: SourceSet by sourceSets.creating
+
+// Tests of the packaged agent. Neither the compiled classes nor the unshaded Byte Buddy are on
+// their classpath, the agent jar is only compiled against and attached with -javaagent.
+val agentTest: SourceSet by sourceSets.creating {
+    compileClasspath += files(tasks.shadowJar)
+}
+
+dependencies {
+    // Slf4j is provided by the application the agent is attached to.
+    compileOnly("org.slf4j:slf4j-api:1.7+")
+
+    // Shaded and relocated into the agent jar, see shadowJar below.
+    implementation("net.bytebuddy:byte-buddy:1.14.18")
+
+    compileOnly("com.google.code.findbugs:jsr305:3.0.2")
+    compileOnly("com.github.spotbugs:spotbugs-annotations:4.7.3")
+
+    // Use JUnit Jupiter for testing.
+    testImplementation("org.junit.jupiter:junit-jupiter:5.9.2")
+    testImplementation("org.hamcrest:hamcrest:2.2")
+    testImplementation("org.slf4j:slf4j-api:1.7+")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher:1.9.2")
+    testRuntimeOnly("ch.qos.logback:logback-classic:1.2.13")
+
+    "agentTestImplementation"("org.junit.jupiter:junit-jupiter:5.9.2")
+    "agentTestImplementation"("org.hamcrest:hamcrest:2.2")
+    "agentTestImplementation"("org.slf4j:slf4j-api:1.7+")
+    "agentTestRuntimeOnly"("org.junit.platform:junit-platform-launcher:1.9.2")
+    "agentTestRuntimeOnly"("ch.qos.logback:logback-classic:1.2.13")
+
+    val jmhVersion = "1.37"
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:$jmhVersion")
+    "jmhImplementation"("org.slf4j:slf4j-api:1.7+")
+    "jmhImplementation"(project(":lib"))
+    "jmhRuntimeOnly"("ch.qos.logback:logback-classic:1.2.13")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+
+    val checkerVersion = "3.44.0"
+    compileOnly("org.checkerframework:checker-qual:$checkerVersion")
+    testCompileOnly("org.checkerframework:checker-qual:$checkerVersion")
+    checkerFramework("org.checkerframework:checker:$checkerVersion")
+}
+
+tasks.jar {
+    archiveClassifier.set("plain")
+}
+
+tasks.shadowJar {
+    archiveBaseName.set(artifactName)
+    archiveClassifier.set("")
+    relocate("net.bytebuddy", "com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.shaded.bytebuddy")
+    manifest {
+        attributes(
+            "Premain-Class" to agentClass,
+            "Agent-Class" to agentClass,
+            "Can-Redefine-Classes" to "true",
+            "Can-Retransform-Classes" to "true"
+        )
+    }
+}
+
+tasks.assemble {
+    dependsOn(tasks.shadowJar)
+}
+
+publishing {
+    publications {
+        create<MavenPublication>("mavenJava") {
+
+            groupId = group.toString()
+            artifactId = artifactName
+            version = version
+
+            artifact(tasks.shadowJar)
+            artifact(tasks.named("javadocJar"))
+            artifact(tasks.named("sourcesJar"))
+
+            pom {
+                name.set(artifactName)
+                description.set("Java agent which preserves Slf4j MDC context across JDK executors.")
+                url.set("https://github.com/paramvir-b/context-preserved-slf4j")
+                licenses {
+                    license {
+                        name.set("The MIT License")
+                        url.set("https://github.com/paramvir-b/context-preserved/LICENSE.txt")
+                    }
+                }
+                developers {
+                    developer {
+                        id.set("paramvir-b")
+                        name.set("Paramvir Bali")
+                        email.set("paramvir@rokoder.com")
+                    }
+                }
+                scm {
+                    connection.set("scm:git:https://github.com/paramvir-b/context-preserved-slf4j.git")
+                    developerConnection.set("scm:git:https://github.com/paramvir-b/context-preserved-slf4j.git")
+                    url.set("https://github.com/paramvir-b/context-preserved-slf4j")
+                }
+            }
+
+            repositories {
+                maven {
+                    val releasesRepoUrl = uri(layout.buildDirectory.dir("repos/releases"))
+                    val snapshotsRepoUrl = uri(layout.buildDirectory.dir("repos/snapshots"))
+                    url = uri(if (version.toString().endsWith("snapshot")) snapshotsRepoUrl else releasesRepoUrl)
+                }
+            }
+        }
+    }
+}
+
+signing {
+    sign(publishing.publications["mavenJava"])
+}
+
+tasks.javadoc {
+    if (JavaVersion.current().isJava9Compatible) {
+        (options as StandardJavadocDocletOptions).addBooleanOption("html5", true)
+    }
+}
+
+checkstyle {
+    toolVersion = "10.4"
+    isIgnoreFailures = false // Added this so that the tasks fail if CheckStyle errors are present.
+}
+
+tasks.withType<Checkstyle>().configureEach {
+    reports {
+        xml.required.set(false)
+        html.required.set(true)
+    }
+}
+
+jacoco {
+    toolVersion = "0.8.11"
+}
+
+// Advice templates are never run as they are, their code is inlined into the JDK. The agent entry
+// point only runs as premain of a JVM, which is covered by the agentTest task instead.
+val jacocoExcludes = listOf(
+    "**/agent/ExecutorAdvice*",
+    "**/agent/Slf4jMdcPreservedAgent*"
+)
+
+tasks.jacocoTestCoverageVerification {
+    classDirectories.setFrom(sourceSets.main.get().output.asFileTree.matching { exclude(jacocoExcludes) })
+    violationRules {
+        rule {
+            isEnabled = true
+            limit {
+                minimum = "1.0".toBigDecimal()
+            }
+        }
+    }
+}
+
+tasks.jacocoTestReport {
+    dependsOn(tasks.test) // tests are required to run before generating the report
+    classDirectories.setFrom(sourceSets.main.get().output.asFileTree.matching { exclude(jacocoExcludes) })
+    reports {
+        xml.required.set(false)
+        csv.required.set(false)
+    }
+
+    doFirst {
+        println(reports.html.outputLocation.get().toString() + "/index.html")
+    }
+}
+
+tasks.test {
+    finalizedBy(
+        tasks.jacocoTestReport,
+        tasks.jacocoTestCoverageVerification
+    ) // report is always generated after tests run
+}
+
+tasks.spotbugsTest {
+    enabled = false
+}
+
+tasks.named("spotbugsAgentTest") {
+    enabled = false
+}
+
+tasks.named("spotbugsJmh") {
+    enabled = false
+}
+
+tasks.spotbugsMain {
+    reports.create("html") {
+        required.set(true)
+    }
+}
+
+checkerFramework {
+    checkers = listOf(
+        "org.checkerframework.checker.nullness.NullnessChecker",
+        "org.checkerframework.common.value.ValueChecker"
+    )
+    excludeTests = true
+    skipCheckerFramework = false
+}
+
+tasks.named<Test>("test") {
+
+    // Run tests in parallel
+    maxParallelForks = Runtime.getRuntime().availableProcessors().div(2).takeIf { it > 0 } ?: 1
+
+    // Use JUnit Platform for unit tests.
+    useJUnitPlatform()
+}
+
+fun Test.runWithAgent() {
+    group = "verification"
+    extensions.configure<JacocoTaskExtension> {
+        isEnabled = false
+    }
+    testClassesDirs = agentTest.output.classesDirs
+    classpath = agentTest.runtimeClasspath
+    dependsOn(tasks.shadowJar)
+    jvmArgumentProviders.add(CommandLineArgumentProvider {
+        listOf("-javaagent:" + tasks.shadowJar.get().archiveFile.get().asFile.absolutePath)
+    })
+    useJUnitPlatform()
+}
+
+val agentTestTask = tasks.register<Test>("agentTest") {
+    description = "Runs the tests of the packaged agent."
+    runWithAgent()
+}
+
+// CompletableFuture runs async tasks on a new thread each when the common pool has a single thread,
+// which is the default on a single cpu machine.
+val agentTestSingleThreadCommonPool = tasks.register<Test>("agentTestSingleThreadCommonPool") {
+    description = "Runs the tests of the packaged agent with a single thread common pool."
+    runWithAgent()
+    systemProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "1")
+}
+
+tasks.check {
+    dependsOn(agentTestTask, agentTestSingleThreadCommonPool)
+}
+
+// Runs the steady-state benchmarks with and without the agent followed by the startup benchmark.
+tasks.register<JavaExec>("agentBenchmark") {
+    group = "verification"
+    description = "Measures startup and steady-state overhead of the agent."
+    dependsOn(tasks.shadowJar)
+    classpath = jmh.runtimeClasspath
+    mainClass.set("com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.AgentOverheadBenchmarks")
+    jvmArgumentProviders.add(CommandLineArgumentProvider {
+        listOf("-Dagent.jar=" + tasks.shadowJar.get().archiveFile.get().asFile.absolutePath)
+    })
+}
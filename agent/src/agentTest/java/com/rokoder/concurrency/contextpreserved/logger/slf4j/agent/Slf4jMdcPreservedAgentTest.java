@@ -0,0 +1,403 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap.MdcBridge;
+import com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap.MdcContextHolder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+/**
+ * The test JVM runs with the packaged agent attached and only the agent jar, Slf4j and the test
+ * libraries on its classpath, so plain JDK executors are used throughout.
+ */
+final class Slf4jMdcPreservedAgentTest {
+  private static final String MDC_KEY = "test-key";
+  private static final String WORKER_KEY = "worker-key";
+
+  private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+  private final ScheduledExecutorService scheduledExecutorService =
+      Executors.newSingleThreadScheduledExecutor();
+  private final ForkJoinPool forkJoinPool = new ForkJoinPool(1);
+
+  @AfterEach
+  void tearDown() {
+    MDC.clear();
+    executorService.shutdownNow();
+    scheduledExecutorService.shutdownNow();
+    forkJoinPool.shutdownNow();
+  }
+
+  @Test
+  void testAgentIsPackagedWithRelocatedByteBuddy() {
+    assertThat(Slf4jMdcPreservedAgent.class.getProtectionDomain().getCodeSource().getLocation()
+        .getPath(), endsWith(".jar"));
+    assertThrows(ClassNotFoundException.class, () -> Class.forName("net.bytebuddy.ByteBuddy"));
+  }
+
+  @Test
+  void testBridgeIsLoadedByBootstrapClassLoader() {
+    assertThat(MdcBridge.class.getClassLoader(), nullValue());
+  }
+
+  @Test
+  void testTasksHoldTheirContext() {
+    assertThat(new FutureTask<>(() -> null), instanceOf(MdcContextHolder.class));
+    assertThat(ForkJoinTask.adapt(() -> {
+    }), instanceOf(MdcContextHolder.class));
+  }
+
+  @Test
+  void testThreadPoolExecutorExecute() throws InterruptedException {
+    MDC.put(MDC_KEY, "test-value");
+    AtomicReference<String> captured = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    executorService.execute(() -> {
+      captured.set(MDC.get(MDC_KEY));
+      latch.countDown();
+    });
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    assertThat(captured.get(), equalTo("test-value"));
+  }
+
+  @Test
+  void testThreadPoolExecutorExecuteSameRunnableKeepsContextOfEachSubmission()
+      throws InterruptedException {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(2);
+    List<String> captured = Collections.synchronizedList(new ArrayList<>());
+    Runnable runnable = () -> {
+      captured.add(MDC.get(MDC_KEY));
+      done.countDown();
+    };
+    executorService.execute(() -> awaitQuietly(blocked));
+
+    MDC.put(MDC_KEY, "tenant-A");
+    executorService.execute(runnable);
+    MDC.put(MDC_KEY, "tenant-B");
+    executorService.execute(runnable);
+    blocked.countDown();
+    assertTrue(done.await(1, TimeUnit.SECONDS));
+
+    assertThat(captured, contains("tenant-A", "tenant-B"));
+  }
+
+  @Test
+  void testThreadPoolExecutorSubmitContextDoChangeLater() throws Exception {
+    MDC.put(MDC_KEY, "test-value-1");
+    assertThat(getFrom(executorService.submit(() -> MDC.get(MDC_KEY))), equalTo("test-value-1"));
+
+    MDC.put(MDC_KEY, "test-value-2");
+    assertThat(getFrom(executorService.submit(() -> MDC.get(MDC_KEY))), equalTo("test-value-2"));
+  }
+
+  @Test
+  void testThreadPoolExecutorRestoresWorkerContext() throws Exception {
+    MDC.put(MDC_KEY, "test-value");
+    getFrom(executorService.submit(() -> MDC.get(MDC_KEY)));
+
+    MDC.clear();
+    assertThat(getFrom(executorService.submit(MDC::getCopyOfContextMap)), nullValue());
+  }
+
+  @Test
+  void testThreadPoolExecutorEmptyContextDoNotLeakWorkerContext() throws Exception {
+    AtomicReference<Map<String, String>> afterExecuteContext = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>()) {
+      @Override
+      protected void beforeExecute(Thread t, Runnable r) {
+        MDC.put(WORKER_KEY, "worker-value");
+      }
+
+      @Override
+      protected void afterExecute(Runnable r, Throwable t) {
+        afterExecuteContext.set(MDC.getCopyOfContextMap());
+        MDC.clear();
+        latch.countDown();
+      }
+    };
+    try {
+      assertThat(getFrom(threadPoolExecutor.submit(MDC::getCopyOfContextMap)), nullValue());
+      assertTrue(latch.await(1, TimeUnit.SECONDS));
+      assertThat(afterExecuteContext.get().get(WORKER_KEY), equalTo("worker-value"));
+    } finally {
+      threadPoolExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testThreadPoolExecutorAfterExecuteSeesSubmittedFuture() throws Exception {
+    AtomicReference<Runnable> afterExecuteTask = new AtomicReference<>();
+    AtomicReference<Throwable> afterExecuteThrowable = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>()) {
+      @Override
+      protected void afterExecute(Runnable r, Throwable t) {
+        // Idiom documented by ThreadPoolExecutor#afterExecute
+        Throwable thrown = t;
+        if (thrown == null && r instanceof Future<?>) {
+          try {
+            ((Future<?>) r).get();
+          } catch (ExecutionException e) {
+            thrown = e.getCause();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        afterExecuteTask.set(r);
+        afterExecuteThrowable.set(thrown);
+        latch.countDown();
+      }
+    };
+    try {
+      MDC.put(MDC_KEY, "test-value");
+      IllegalStateException exception = new IllegalStateException("test-exception");
+      Future<?> future = threadPoolExecutor.submit(() -> {
+        throw exception;
+      });
+      assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+      assertThat(afterExecuteTask.get(), sameInstance(future));
+      assertThat(afterExecuteThrowable.get(), sameInstance(exception));
+    } finally {
+      threadPoolExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testThreadPoolExecutorQueueHoldsSubmittedFuture() throws Exception {
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>());
+    try {
+      MDC.put(MDC_KEY, "test-value");
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch blocker = new CountDownLatch(1);
+      threadPoolExecutor.execute(() -> {
+        started.countDown();
+        awaitQuietly(blocker);
+      });
+      assertTrue(started.await(1, TimeUnit.SECONDS));
+      Future<String> queued = threadPoolExecutor.submit(() -> MDC.get(MDC_KEY));
+
+      assertThat(threadPoolExecutor.getQueue(), contains(sameInstance(queued)));
+      assertTrue(threadPoolExecutor.remove((Runnable) queued));
+      blocker.countDown();
+    } finally {
+      threadPoolExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testThreadPoolExecutorShutdownNowReturnsSubmittedTasks() throws InterruptedException {
+    MDC.put(MDC_KEY, "test-value");
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch blocker = new CountDownLatch(1);
+    executorService.execute(() -> {
+      started.countDown();
+      awaitQuietly(blocker);
+    });
+    assertTrue(started.await(1, TimeUnit.SECONDS));
+    Runnable queued = () -> {
+    };
+    executorService.execute(queued);
+
+    List<Runnable> pending = executorService.shutdownNow();
+    blocker.countDown();
+
+    assertThat(pending, contains(sameInstance(queued)));
+  }
+
+  @Test
+  void testThreadPoolExecutorSubclassCallingSuperExecute() throws Exception {
+    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>()) {
+      @Override
+      public void execute(Runnable command) {
+        super.execute(command);
+      }
+    };
+    try {
+      MDC.put(MDC_KEY, "test-value");
+      assertThat(getFrom(threadPoolExecutor.submit(() -> MDC.get(MDC_KEY))),
+          equalTo("test-value"));
+
+      MDC.clear();
+      assertThat(getFrom(threadPoolExecutor.submit(MDC::getCopyOfContextMap)), nullValue());
+    } finally {
+      threadPoolExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testScheduledThreadPoolExecutorScheduleCallable() throws Exception {
+    MDC.put(MDC_KEY, "test-value");
+    ScheduledFuture<String> future =
+        scheduledExecutorService.schedule(() -> MDC.get(MDC_KEY), 1, TimeUnit.MILLISECONDS);
+
+    assertThat(getFrom(future), equalTo("test-value"));
+  }
+
+  @Test
+  void testScheduledThreadPoolExecutorFixedRateContextDoNotChangeLater()
+      throws InterruptedException {
+    MDC.put(MDC_KEY, "test-value-1");
+    AtomicReference<String> captured = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(2);
+    scheduledExecutorService.scheduleAtFixedRate(() -> {
+      captured.set(MDC.get(MDC_KEY));
+      latch.countDown();
+    }, 0, 1, TimeUnit.MILLISECONDS);
+    MDC.put(MDC_KEY, "test-value-2");
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    assertThat(captured.get(), equalTo("test-value-1"));
+  }
+
+  @Test
+  void testScheduledThreadPoolExecutorFixedDelayContextDoNotChangeLater()
+      throws InterruptedException {
+    MDC.put(MDC_KEY, "test-value-1");
+    AtomicReference<String> captured = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(2);
+    scheduledExecutorService.scheduleWithFixedDelay(() -> {
+      captured.set(MDC.get(MDC_KEY));
+      latch.countDown();
+    }, 0, 1, TimeUnit.MILLISECONDS);
+    MDC.put(MDC_KEY, "test-value-2");
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    assertThat(captured.get(), equalTo("test-value-1"));
+  }
+
+  @Test
+  void testForkJoinPoolSubmit() throws Exception {
+    MDC.put(MDC_KEY, "test-value");
+
+    assertThat(getFrom(forkJoinPool.submit(() -> MDC.get(MDC_KEY))), equalTo("test-value"));
+  }
+
+  @Test
+  void testForkJoinPoolSubmitRunnableForkJoinTask() throws Exception {
+    MDC.put(MDC_KEY, "test-value");
+    CapturingAction action = new CapturingAction();
+
+    assertThat(forkJoinPool.submit((Runnable) action), sameInstance(action));
+    getFrom(action);
+    assertThat(action.captured, equalTo("test-value"));
+  }
+
+  @Test
+  void testForkJoinPoolExecuteRunnable() throws InterruptedException {
+    MDC.put(MDC_KEY, "test-value");
+    AtomicReference<String> captured = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    forkJoinPool.execute(() -> {
+      captured.set(MDC.get(MDC_KEY));
+      latch.countDown();
+    });
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+    assertThat(captured.get(), equalTo("test-value"));
+  }
+
+  @Test
+  void testForkJoinPoolExecuteForkJoinTask() throws Exception {
+    MDC.put(MDC_KEY, "test-value");
+    CapturingAction action = new CapturingAction();
+    forkJoinPool.execute((ForkJoinTask<?>) action);
+    getFrom(action);
+
+    assertThat(action.captured, equalTo("test-value"));
+  }
+
+  @Test
+  void testForkJoinPoolInvokeAll() throws Exception {
+    MDC.put(MDC_KEY, "test-value");
+    Callable<String> task = () -> MDC.get(MDC_KEY);
+
+    for (Future<String> future : forkJoinPool.invokeAll(Arrays.asList(task, task))) {
+      assertThat(getFrom(future), equalTo("test-value"));
+    }
+  }
+
+  @Test
+  void testForkJoinPoolRestoresWorkerContext() throws Exception {
+    MDC.put(MDC_KEY, "test-value");
+    getFrom(forkJoinPool.submit(() -> MDC.get(MDC_KEY)));
+
+    MDC.clear();
+    assertThat(getFrom(forkJoinPool.submit(MDC::getCopyOfContextMap)), nullValue());
+  }
+
+  @Test
+  void testCompletableFutureSupplyAsync() {
+    MDC.put(MDC_KEY, "test-value");
+
+    // Runs on the common pool, or on a new thread per task when it has a single thread
+    assertThat(CompletableFuture.supplyAsync(() -> MDC.get(MDC_KEY)).join(),
+        equalTo("test-value"));
+  }
+
+  private static <V> V getFrom(Future<V> future)
+      throws ExecutionException, InterruptedException, TimeoutException {
+    return future.get(1, TimeUnit.SECONDS);
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(1, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class CapturingAction extends RecursiveAction implements Runnable {
+    private volatile String captured;
+
+    @Override
+    protected void compute() {
+      captured = MDC.get(MDC_KEY);
+    }
+
+    @Override
+    public void run() {
+      invoke();
+    }
+  }
+}
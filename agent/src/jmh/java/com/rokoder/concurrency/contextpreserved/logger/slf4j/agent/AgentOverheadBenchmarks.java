@@ -0,0 +1,41 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent;
+
+import java.util.Objects;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the agent overhead benchmarks. The agent has to be attached to the forked benchmark JVM
+ * itself, which JMH annotations cannot express, so the runs are configured here.
+ *
+ * <p>Usage: {@code ./gradlew :agent:agentBenchmark}
+ */
+public final class AgentOverheadBenchmarks {
+  static final String AGENT_JAR_PROPERTY = "agent.jar";
+
+  private AgentOverheadBenchmarks() {
+  }
+
+  /**
+   * Runs the steady-state benchmarks without and with the agent followed by the startup benchmark.
+   *
+   * @param args Not used
+   * @throws RunnerException If a benchmark run fails
+   */
+  public static void main(String[] args) throws RunnerException {
+    String agentJar = Objects.requireNonNull(System.getProperty(AGENT_JAR_PROPERTY),
+        AGENT_JAR_PROPERTY + " system property must point to the agent jar");
+
+    new Runner(new OptionsBuilder()
+        .include(ExecutorSubmitBenchmark.class.getSimpleName())
+        .build()).run();
+    new Runner(new OptionsBuilder()
+        .include(ExecutorSubmitBenchmark.class.getSimpleName())
+        .jvmArgsAppend("-javaagent:" + agentJar)
+        .build()).run();
+    new Runner(new OptionsBuilder()
+        .include(StartupBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
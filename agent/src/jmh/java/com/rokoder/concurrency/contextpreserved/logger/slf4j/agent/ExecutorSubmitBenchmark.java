@@ -0,0 +1,138 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent;
+
+import com.rokoder.concurrency.contextpreserved.logger.slf4j.Slf4jMdcPreservedFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+
+/**
+ * Steady-state cost of handing a task to each instrumented executor and waiting for its result.
+ * {@link AgentOverheadBenchmarks} runs it once without and once with the agent attached. The
+ * {@code libraryWrapper} benchmark is the baseline to compare the agent against, it propagates the
+ * context with {@link Slf4jMdcPreservedFactory} around a plain executor. The {@code execute}
+ * benchmarks hand over a plain {@link Runnable} and wait on a latch, which is the path where the
+ * agent keeps the snapshot in its context table rather than in the task.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExecutorSubmitBenchmark {
+  private static final Callable<String> CALLABLE = () -> MDC.get("key-0");
+  private static final Supplier<String> SUPPLIER = () -> MDC.get("key-0");
+
+  // Empty context clears the worker MDC only, the others pay for the snapshot
+  @Param({"0", "4", "16"})
+  public int mdcEntries;
+
+  private ExecutorService threadPoolExecutor;
+  private ExecutorService libraryWrapper;
+  private ScheduledExecutorService scheduledThreadPoolExecutor;
+  private ForkJoinPool forkJoinPool;
+
+  /**
+   * Fills the MDC of the benchmark thread and starts the executors.
+   */
+  @Setup
+  public void setUp() {
+    MDC.clear();
+    for (int i = 0; i < mdcEntries; i++) {
+      MDC.put("key-" + i, "value-" + i);
+    }
+    threadPoolExecutor = Executors.newSingleThreadExecutor();
+    libraryWrapper = Slf4jMdcPreservedFactory.newDynamicContextExecutorServiceFrom(
+        Executors.newSingleThreadExecutor());
+    scheduledThreadPoolExecutor = Executors.newSingleThreadScheduledExecutor();
+    forkJoinPool = new ForkJoinPool(1);
+  }
+
+  /**
+   * Stops the executors and clears the MDC of the benchmark thread.
+   */
+  @TearDown
+  public void tearDown() {
+    threadPoolExecutor.shutdownNow();
+    libraryWrapper.shutdownNow();
+    scheduledThreadPoolExecutor.shutdownNow();
+    forkJoinPool.shutdownNow();
+    MDC.clear();
+  }
+
+  @Benchmark
+  public String threadPoolExecutorSubmit() throws ExecutionException, InterruptedException {
+    return threadPoolExecutor.submit(CALLABLE).get();
+  }
+
+  /**
+   * Executes a plain {@link Runnable} on a {@code ThreadPoolExecutor} and waits for it to run.
+   */
+  @Benchmark
+  public void threadPoolExecutorExecute() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    threadPoolExecutor.execute(latch::countDown);
+    latch.await();
+  }
+
+  /**
+   * Executes a plain {@link Runnable} on the library wrapper and waits for it to run.
+   */
+  @Benchmark
+  public void libraryWrapperExecute() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    libraryWrapper.execute(latch::countDown);
+    latch.await();
+  }
+
+  @Benchmark
+  public String libraryWrapperSubmit() throws ExecutionException, InterruptedException {
+    return libraryWrapper.submit(CALLABLE).get();
+  }
+
+  @Benchmark
+  public String scheduledThreadPoolExecutorSchedule()
+      throws ExecutionException, InterruptedException {
+    return scheduledThreadPoolExecutor.schedule(CALLABLE, 0, TimeUnit.NANOSECONDS).get();
+  }
+
+  @Benchmark
+  public String forkJoinPoolSubmit() throws ExecutionException, InterruptedException {
+    return forkJoinPool.submit(CALLABLE).get();
+  }
+
+  /**
+   * Executes a plain {@link Runnable} on a {@code ForkJoinPool} and waits for it to run.
+   */
+  @Benchmark
+  public void forkJoinPoolExecute() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    forkJoinPool.execute(latch::countDown);
+    latch.await();
+  }
+
+  @Benchmark
+  public String completableFutureSupplyAsync() {
+    return CompletableFuture.supplyAsync(SUPPLIER, forkJoinPool).join();
+  }
+}
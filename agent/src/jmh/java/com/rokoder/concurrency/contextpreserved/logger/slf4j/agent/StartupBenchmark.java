@@ -0,0 +1,69 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Startup cost of the agent. Each invocation launches a new JVM running {@link StartupProbe}, with
+ * and without the agent, so the difference is the time spent in premain and retransformation.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+  @Param({"false", "true"})
+  public boolean withAgent;
+
+  private final List<String> command = new ArrayList<>();
+
+  /**
+   * Builds the command line of the probe JVM.
+   */
+  @Setup
+  public void setUp() {
+    command.clear();
+    command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    if (withAgent) {
+      command.add("-javaagent:" + Objects.requireNonNull(
+          System.getProperty(AgentOverheadBenchmarks.AGENT_JAR_PROPERTY), "agent jar not set"));
+    }
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(StartupProbe.class.getName());
+  }
+
+  /**
+   * Launches the probe JVM and waits for it to exit.
+   *
+   * @return Exit code of the probe JVM
+   * @throws IOException If the probe JVM could not be started
+   * @throws InterruptedException If interrupted while waiting for the probe JVM
+   */
+  @Benchmark
+  public int launchJvm() throws IOException, InterruptedException {
+    int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+    if (exitCode != 0) {
+      throw new IllegalStateException("Probe JVM failed with exit code " + exitCode);
+    }
+    return exitCode;
+  }
+}
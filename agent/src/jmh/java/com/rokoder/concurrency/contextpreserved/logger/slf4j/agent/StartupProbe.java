@@ -0,0 +1,33 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.MDC;
+
+/**
+ * Minimal application launched by {@link StartupBenchmark}. It submits a single task with a
+ * populated MDC so the instrumented path is exercised once before the JVM exits.
+ */
+public final class StartupProbe {
+
+  private StartupProbe() {
+  }
+
+  /**
+   * Runs the probe.
+   *
+   * @param args Not used
+   * @throws ExecutionException If the submitted task failed
+   * @throws InterruptedException If interrupted while waiting for the task
+   */
+  public static void main(String[] args) throws ExecutionException, InterruptedException {
+    MDC.put("probe-key", "probe-value");
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      executorService.submit(() -> MDC.get("probe-key")).get();
+    } finally {
+      executorService.shutdown();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent;
+
+import com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap.MdcBridge;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.concurrent.ForkJoinTask;
+import javax.annotation.Nullable;
+import net.bytebuddy.asm.Advice;
+
+/**
+ * Advice templates inlined into the JDK executors. The code is copied into the instrumented
+ * methods, so it may only refer to JDK classes and to classes injected into the bootstrap class
+ * loader.
+ */
+final class ExecutorAdvice {
+
+  private ExecutorAdvice() {
+    // Intentionally private as it only groups advice classes.
+  }
+
+  /**
+   * Captures the context into the task passed as the first argument.
+   */
+  static final class CaptureArgument {
+
+    private CaptureArgument() {
+    }
+
+    @Advice.OnMethodEnter(suppress = Throwable.class)
+    static void enter(@Advice.Argument(0) @Nullable Object task) {
+      MdcBridge.capture(task);
+    }
+  }
+
+  /**
+   * Captures the context for the {@link Runnable} passed as the first argument, decorating it if
+   * the same instance is still pending from an earlier submission.
+   */
+  static final class CaptureOrWrapRunnableArgument {
+
+    private CaptureOrWrapRunnableArgument() {
+    }
+
+    @SuppressFBWarnings(value = {"IP_PARAMETER_IS_DEAD_BUT_OVERWRITTEN", "DLS_DEAD_LOCAL_STORE"},
+        justification = "Byte Buddy writes the assigned argument back into the advised method")
+    @Advice.OnMethodEnter(suppress = Throwable.class)
+    static void enter(@Advice.Argument(value = 0, readOnly = false) @Nullable Runnable task) {
+      task = MdcBridge.captureOrWrap(task);
+    }
+  }
+
+  /**
+   * Captures the context into the task passed as the first argument if it is a
+   * {@link ForkJoinTask}. Other tasks are adapted by the pool and captured by
+   * {@link CaptureThis}.
+   */
+  static final class CaptureForkJoinTaskArgument {
+
+    private CaptureForkJoinTaskArgument() {
+    }
+
+    @Advice.OnMethodEnter(suppress = Throwable.class)
+    static void enter(@Advice.Argument(0) @Nullable Object task) {
+      if (task instanceof ForkJoinTask) {
+        MdcBridge.capture(task);
+      }
+    }
+  }
+
+  /**
+   * Captures the context into the task being constructed.
+   */
+  static final class CaptureThis {
+
+    private CaptureThis() {
+    }
+
+    @Advice.OnMethodExit(suppress = Throwable.class)
+    static void exit(@Advice.This Object task) {
+      MdcBridge.capture(task);
+    }
+  }
+
+  /**
+   * Applies the context captured for the task being run and restores the previous one afterwards.
+   */
+  static final class ApplyThis {
+
+    private ApplyThis() {
+    }
+
+    @Nullable
+    @Advice.OnMethodEnter(suppress = Throwable.class)
+    static Object enter(@Advice.This Object task) {
+      return MdcBridge.apply(task);
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class, suppress = Throwable.class)
+    static void exit(@Advice.Enter @Nullable Object token) {
+      MdcBridge.restore(token);
+    }
+  }
+
+  /**
+   * Decorates the {@link Runnable} passed as the first argument.
+   */
+  static final class WrapRunnableArgument {
+
+    private WrapRunnableArgument() {
+    }
+
+    @SuppressFBWarnings(value = {"IP_PARAMETER_IS_DEAD_BUT_OVERWRITTEN", "DLS_DEAD_LOCAL_STORE"},
+        justification = "Byte Buddy writes the assigned argument back into the advised method")
+    @Advice.OnMethodEnter(suppress = Throwable.class)
+    static void enter(@Advice.Argument(value = 0, readOnly = false) @Nullable Runnable task) {
+      task = MdcBridge.wrap(task);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent;
+
+import com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap.MdcAccessor;
+import com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap.MdcBridge;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.slf4j.MDC;
+
+/**
+ * {@link MdcAccessor} backed by Slf4j {@link MDC}. It captures and restores the context the same
+ * way as the context coordinator of {@code Slf4jMdcPreservedFactory}.
+ */
+final class Slf4jMdcAccessor implements MdcAccessor {
+
+  private Slf4jMdcAccessor() {
+  }
+
+  /**
+   * Installs a new accessor into the {@link MdcBridge}. It must only be called once the bridge is
+   * injected into the bootstrap class loader, otherwise the application would get its own copy.
+   */
+  static void install() {
+    MdcBridge.install(new Slf4jMdcAccessor());
+  }
+
+  @Nullable
+  @Override
+  public Map<String, String> get() {
+    return MDC.getCopyOfContextMap();
+  }
+
+  @SuppressFBWarnings(value = "NP_METHOD_PARAMETER_TIGHTENS_ANNOTATION",
+      justification = "It does not change nullness")
+  @Override
+  public void set(@Nullable Map<String, String> context) {
+    // Not every MDC adapter accepts a null context map, so clear it explicitly.
+    if (context == null) {
+      MDC.clear();
+    } else {
+      MDC.setContextMap(context);
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent;
+
+import static net.bytebuddy.matcher.ElementMatchers.isConstructor;
+import static net.bytebuddy.matcher.ElementMatchers.isDeclaredBy;
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.none;
+import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
+
+import com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap.MdcBridge;
+import com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap.MdcContextHolder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import javax.annotation.Nullable;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.asm.AsmVisitorWrapper;
+import net.bytebuddy.asm.MemberSubstitution;
+import net.bytebuddy.description.modifier.FieldPersistence;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.implementation.FieldAccessor;
+
+/**
+ * Java agent which preserves the Slf4j MDC context across {@code ThreadPoolExecutor},
+ * {@code ScheduledThreadPoolExecutor} and {@code ForkJoinPool} instances, including the ones
+ * created by third party libraries, and across the {@code CompletableFuture} async methods.
+ *
+ * <p>The context is captured from the submitting thread when a task is handed to the executor, set
+ * on the worker thread while the task runs and restored afterwards. It is the same snapshot
+ * semantics as the dynamic context executors of {@code Slf4jMdcPreservedFactory}. Executors keep
+ * handling the very tasks they were given, the snapshot is carried by a field added to
+ * {@code FutureTask} and {@code ForkJoinTask} and by a weak identity table for any other task. A
+ * {@code Runnable} handed to a {@code ThreadPoolExecutor} again while its earlier submission is
+ * still pending is decorated, so that each submission keeps its own snapshot.
+ *
+ * <p>Slf4j must be visible to the system class loader, otherwise the agent prints a warning and
+ * instruments nothing.
+ *
+ * <p>Tasks forked from within a {@code ForkJoinPool}, like the ones of parallel streams, are not
+ * captured. {@code java.util.Timer} is not instrumented.
+ *
+ * <p>Usage: {@code java -javaagent:context-preserved-slf4j-agent.jar ...}
+ */
+public final class Slf4jMdcPreservedAgent {
+
+  private static final String BOOTSTRAP_PACKAGE =
+      "com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap.";
+
+  // Classes referenced by the advice, these must be loaded by the bootstrap class loader
+  private static final String[] BOOTSTRAP_CLASS_NAMES = {
+    BOOTSTRAP_PACKAGE + "MdcAccessor",
+    BOOTSTRAP_PACKAGE + "MdcContextHolder",
+    BOOTSTRAP_PACKAGE + "MdcContextTable",
+    BOOTSTRAP_PACKAGE + "MdcContextTable$Key",
+    BOOTSTRAP_PACKAGE + "MdcContextTable$LookupKey",
+    BOOTSTRAP_PACKAGE + "MdcPreservedRunnable",
+    BOOTSTRAP_PACKAGE + "MdcBridge"
+  };
+
+  private static final String FORK_JOIN_TASK_CLASS_NAME = "java.util.concurrent.ForkJoinTask";
+
+  private static final String CONTEXT_FIELD_NAME = "preservedMdcContext";
+
+  private static final AtomicBoolean INSTALLED = new AtomicBoolean();
+
+  private Slf4jMdcPreservedAgent() {
+    // Intentionally private as it is only an agent entry point.
+  }
+
+  /**
+   * Entry point when the agent is passed with {@code -javaagent}.
+   *
+   * @param agentArgs Agent arguments, not used
+   * @param instrumentation Instrumentation provided by the JVM
+   * @throws IOException If the bootstrap classes could not be written to a temporary jar
+   */
+  public static void premain(@Nullable String agentArgs, Instrumentation instrumentation)
+      throws IOException {
+    install(instrumentation);
+  }
+
+  /**
+   * Entry point when the agent is attached to a running JVM.
+   *
+   * @param agentArgs Agent arguments, not used
+   * @param instrumentation Instrumentation provided by the JVM
+   * @throws IOException If the bootstrap classes could not be written to a temporary jar
+   */
+  public static void agentmain(@Nullable String agentArgs, Instrumentation instrumentation)
+      throws IOException {
+    install(instrumentation);
+  }
+
+  /**
+   * Instruments the JDK executors. Calling it more than once has no effect.
+   *
+   * @param instrumentation Instrumentation provided by the JVM
+   * @throws IOException If the bootstrap classes could not be written to a temporary jar
+   */
+  static void install(Instrumentation instrumentation) throws IOException {
+    Objects.requireNonNull(instrumentation, "instrumentation cannot be null");
+    if (!INSTALLED.compareAndSet(false, true)) {
+      return;
+    }
+    if (!isSlf4jVisible()) {
+      System.err.println("[context-preserved-slf4j-agent] org.slf4j.MDC is not visible to the "
+          + "system class loader, the MDC is not preserved");
+      return;
+    }
+
+    // Order matters. The bridge must be in the bootstrap class loader before anything on the
+    // application side refers to it, otherwise the application would load its own copy.
+    JarFile bootstrapJar = injectBootstrapClasses(instrumentation);
+    Slf4jMdcAccessor.install();
+
+    // A field can only be added while the class is being loaded. None of the tasks is loaded
+    // before premain, so this only falls back to the context table when attached later on. From
+    // Java 9 on java.base must be made to read the module the bridge is injected into.
+    new AgentBuilder.Default()
+        .assureReadEdgeTo(instrumentation, MdcBridge.class)
+        .with(AgentBuilder.InitializationStrategy.NoOp.INSTANCE)
+        .with(AgentBuilder.TypeStrategy.Default.REDEFINE)
+        .with(AgentBuilder.Listener.StreamWriting.toSystemError().withErrorsOnly())
+        .ignore(none())
+        .type(named("java.util.concurrent.FutureTask").or(named(FORK_JOIN_TASK_CLASS_NAME)))
+        .transform((builder, typeDescription, classLoader, module, protectionDomain) -> builder
+            .defineField(CONTEXT_FIELD_NAME, Object.class, Visibility.PRIVATE,
+                FieldPersistence.TRANSIENT)
+            .implement(MdcContextHolder.class)
+            .intercept(FieldAccessor.ofField(CONTEXT_FIELD_NAME)))
+        .installOn(instrumentation);
+
+    // Executors may already be loaded when attached later on, so the advice only changes method
+    // bodies and can be applied by retransformation. Types are matched by name, loading one here
+    // would retransform it and the classes its verification loads would go uninstrumented. The
+    // tasks already implement MdcContextHolder, which is not found by looking up the boot loader.
+    new AgentBuilder.Default()
+        .assureReadEdgeTo(instrumentation, MdcBridge.class)
+        .with(AgentBuilder.LocationStrategy.ForClassLoader.STRONG
+            .withFallbackTo(new ClassFileLocator.ForJarFile(bootstrapJar)))
+        .disableClassFormatChanges()
+        .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+        .with(AgentBuilder.InitializationStrategy.NoOp.INSTANCE)
+        .with(AgentBuilder.TypeStrategy.Default.REDEFINE)
+        .with(AgentBuilder.Listener.StreamWriting.toSystemError().withErrorsOnly())
+        .ignore(none())
+        .type(named("java.util.concurrent.ThreadPoolExecutor"))
+        .transform(advise(
+            Advice.to(ExecutorAdvice.CaptureOrWrapRunnableArgument.class)
+                .on(named("execute").and(takesArguments(Runnable.class))),
+            MemberSubstitution.relaxed()
+                .method(named("run").and(takesArguments(0)).and(isDeclaredBy(Runnable.class)))
+                .replaceWith(runMethod())
+                .on(named("runWorker"))))
+        .type(named("java.util.concurrent.ScheduledThreadPoolExecutor"))
+        .transform(advise(
+            Advice.to(ExecutorAdvice.CaptureArgument.class)
+                .on(named("delayedExecute").and(takesArguments(1)))))
+        .type(named("java.util.concurrent.ForkJoinPool"))
+        .transform(advise(
+            Advice.to(ExecutorAdvice.CaptureForkJoinTaskArgument.class)
+                .on(named("execute").or(named("submit")).or(named("invoke"))
+                    .and(takesArguments(1))
+                    .and(takesArgument(0, named(FORK_JOIN_TASK_CLASS_NAME))
+                        .or(takesArgument(0, Runnable.class))))))
+        .type(nameStartsWith("java.util.concurrent.ForkJoinTask$Adapted")
+            .or(named("java.util.concurrent.ForkJoinTask$RunnableExecuteAction")))
+        .transform(advise(
+            Advice.to(ExecutorAdvice.CaptureThis.class).on(isConstructor())))
+        .type(named(FORK_JOIN_TASK_CLASS_NAME))
+        .transform(advise(
+            Advice.to(ExecutorAdvice.ApplyThis.class)
+                .on(named("doExec").and(takesArguments(0)))))
+        .type(named("java.util.concurrent.CompletableFuture$ThreadPerTaskExecutor"))
+        .transform(advise(
+            Advice.to(ExecutorAdvice.WrapRunnableArgument.class)
+                .on(named("execute").and(takesArguments(Runnable.class)))))
+        .installOn(instrumentation);
+  }
+
+  private static AgentBuilder.Transformer advise(AsmVisitorWrapper... visitors) {
+    return (builder, typeDescription, classLoader, module, protectionDomain) -> {
+      DynamicType.Builder<?> advised = builder;
+      for (AsmVisitorWrapper visitor : visitors) {
+        advised = advised.visit(visitor);
+      }
+      return advised;
+    };
+  }
+
+  private static boolean isSlf4jVisible() {
+    try {
+      Class.forName("org.slf4j.MDC", false, ClassLoader.getSystemClassLoader());
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static Method runMethod() {
+    try {
+      return MdcBridge.class.getMethod("run", Runnable.class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static JarFile injectBootstrapClasses(Instrumentation instrumentation)
+      throws IOException {
+    // Class files are read by name, loading them here would define them in the wrong loader.
+    ClassFileLocator classFileLocator =
+        ClassFileLocator.ForClassLoader.of(Slf4jMdcPreservedAgent.class.getClassLoader());
+    File jar = File.createTempFile("context-preserved-slf4j-agent", ".jar");
+    jar.deleteOnExit();
+    try (JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jar))) {
+      for (String className : BOOTSTRAP_CLASS_NAMES) {
+        jarOutputStream.putNextEntry(new JarEntry(className.replace('.', '/') + ".class"));
+        jarOutputStream.write(classFileLocator.locate(className).resolve());
+        jarOutputStream.closeEntry();
+      }
+    }
+    JarFile jarFile = new JarFile(jar);
+    instrumentation.appendToBootstrapClassLoaderSearch(jarFile);
+    return jarFile;
+  }
+}
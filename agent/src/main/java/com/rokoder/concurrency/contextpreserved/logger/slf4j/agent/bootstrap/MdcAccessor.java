@@ -0,0 +1,27 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap;
+
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Reads and replaces the MDC context of the current thread. It is the bootstrap visible
+ * counterpart of the context coordinator used by the library, as instrumented JDK classes cannot
+ * see Slf4j directly.
+ */
+public interface MdcAccessor {
+
+  /**
+   * Returns a copy of the MDC context of the current thread.
+   *
+   * @return Copy of the current context, or null if there is none
+   */
+  @Nullable
+  Map<String, String> get();
+
+  /**
+   * Replaces the MDC context of the current thread.
+   *
+   * @param context New context to be set, null clears the context
+   */
+  void set(@Nullable Map<String, String> context);
+}
@@ -0,0 +1,204 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.RunnableScheduledFuture;
+import javax.annotation.Nullable;
+
+/**
+ * Entry point used by the advice inlined into the JDK executors. This class is injected into the
+ * bootstrap class loader so that it, and the single {@link MdcAccessor} it holds, is shared between
+ * the instrumented JDK classes and the application.
+ *
+ * <p>A snapshot of the submitting thread MDC is captured into the task when it is handed to an
+ * executor. The worker applies it around the run of the task and restores its own context
+ * afterwards, the same as the context preserved wrappers of the library. A task submitted with an
+ * empty MDC runs with an empty MDC.
+ *
+ * <p>Every submission keeps its own snapshot. A task which cannot carry one is tracked in a table
+ * until it runs, and is only decorated when the very same instance is submitted again before that.
+ */
+public final class MdcBridge {
+
+  // Snapshot of an empty MDC. It avoids copying anything when there is nothing to propagate.
+  static final Object EMPTY_CONTEXT = new Object();
+
+  private static final MdcContextTable CONTEXT_TABLE = new MdcContextTable();
+
+  @Nullable
+  private static volatile MdcAccessor accessor;
+
+  private MdcBridge() {
+    // Intentionally private as it is a util class.
+  }
+
+  /**
+   * Installs the accessor used to capture and restore the MDC context. Until it is installed all
+   * tasks are left as is.
+   *
+   * @param mdcAccessor Accessor to be used
+   */
+  public static void install(MdcAccessor mdcAccessor) {
+    accessor = Objects.requireNonNull(mdcAccessor, "mdcAccessor cannot be null");
+  }
+
+  /**
+   * Captures the MDC context of the calling thread into the passed task. Capturing again replaces
+   * the earlier snapshot, so it must only be used for tasks created for the submission.
+   *
+   * @param task Task being handed to an executor, can be null
+   */
+  public static void capture(@Nullable Object task) {
+    if (task == null) {
+      return;
+    }
+    Object context = captureContext();
+    if (context == null) {
+      return;
+    }
+    if (task instanceof MdcContextHolder) {
+      ((MdcContextHolder) task).setPreservedMdcContext(context);
+    } else {
+      CONTEXT_TABLE.put(task, context);
+    }
+  }
+
+  /**
+   * Captures the MDC context of the calling thread for the passed task. If the same instance is
+   * still pending from an earlier submission it is decorated, so that each submission runs with its
+   * own snapshot.
+   *
+   * @param task Task being handed to an executor, can be null
+   * @return Task to be handed to the executor instead of the passed one
+   */
+  @Nullable
+  public static Runnable captureOrWrap(@Nullable Runnable task) {
+    if (task == null || task instanceof MdcPreservedRunnable) {
+      return task;
+    }
+    Object context = captureContext();
+    if (context == null) {
+      return task;
+    }
+    if (task instanceof MdcContextHolder) {
+      ((MdcContextHolder) task).setPreservedMdcContext(context);
+      return task;
+    }
+    return CONTEXT_TABLE.putIfAbsent(task, context)
+        ? task
+        : new MdcPreservedRunnable(task, context);
+  }
+
+  /**
+   * Applies the MDC context captured for the passed task to the calling thread.
+   *
+   * @param task Task about to be run, can be null
+   * @return Token to be passed to {@link #restore(Object)} once the task completes
+   */
+  @Nullable
+  public static Object apply(@Nullable Object task) {
+    if (task == null) {
+      return null;
+    }
+    Object context;
+    if (task instanceof MdcContextHolder) {
+      context = ((MdcContextHolder) task).getPreservedMdcContext();
+    } else if (task instanceof MdcPreservedRunnable) {
+      // Applies its own snapshot when run
+      return null;
+    } else if (task instanceof RunnableScheduledFuture
+        && ((RunnableScheduledFuture<?>) task).isPeriodic()) {
+      // Runs again with the same snapshot
+      context = CONTEXT_TABLE.get(task);
+    } else {
+      context = CONTEXT_TABLE.remove(task);
+    }
+    return context == null ? null : applyContext(context);
+  }
+
+  /**
+   * Restores the MDC context the calling thread had before {@link #apply(Object)}.
+   *
+   * @param token Token returned by {@link #apply(Object)}
+   */
+  public static void restore(@Nullable Object token) {
+    MdcAccessor mdcAccessor = accessor;
+    if (token == null || mdcAccessor == null) {
+      return;
+    }
+    setContext(mdcAccessor, token);
+  }
+
+  /**
+   * Runs the passed task with the MDC context captured for it.
+   *
+   * @param task Task to be run
+   */
+  public static void run(Runnable task) {
+    Object token = apply(task);
+    try {
+      task.run();
+    } finally {
+      restore(token);
+    }
+  }
+
+  /**
+   * Decorates the passed {@link Runnable} so that it runs with the MDC context of the calling
+   * thread. It must only be used where the decorated task is never seen outside the JDK.
+   *
+   * @param runnable Runnable to be decorated, can be null
+   * @return Decorated {@link Runnable} or the passed one
+   */
+  @Nullable
+  public static Runnable wrap(@Nullable Runnable runnable) {
+    if (runnable == null || runnable instanceof MdcPreservedRunnable) {
+      return runnable;
+    }
+    Object context = captureContext();
+    return context == null ? runnable : new MdcPreservedRunnable(runnable, context);
+  }
+
+  @Nullable
+  static Object applyContext(Object context) {
+    MdcAccessor mdcAccessor = accessor;
+    if (mdcAccessor == null) {
+      return null;
+    }
+    Object previous = snapshotOf(mdcAccessor.get());
+    setContext(mdcAccessor, context);
+    return previous;
+  }
+
+  @Nullable
+  private static Object captureContext() {
+    MdcAccessor mdcAccessor = accessor;
+    if (mdcAccessor == null) {
+      return null;
+    }
+    try {
+      return snapshotOf(mdcAccessor.get());
+    } catch (LinkageError e) {
+      // Slf4j is not visible to the loader of the agent, so there is nothing to propagate.
+      disable(mdcAccessor, e);
+      return null;
+    }
+  }
+
+  private static synchronized void disable(MdcAccessor mdcAccessor, LinkageError e) {
+    if (accessor == mdcAccessor) {
+      accessor = null;
+      System.err.println("[context-preserved-slf4j-agent] Slf4j MDC cannot be used by the agent, "
+          + "the MDC is not preserved anymore: " + e);
+    }
+  }
+
+  private static Object snapshotOf(@Nullable Map<String, String> context) {
+    return context == null || context.isEmpty() ? EMPTY_CONTEXT : context;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void setContext(MdcAccessor mdcAccessor, Object context) {
+    mdcAccessor.set(context == EMPTY_CONTEXT ? null : (Map<String, String>) context);
+  }
+}
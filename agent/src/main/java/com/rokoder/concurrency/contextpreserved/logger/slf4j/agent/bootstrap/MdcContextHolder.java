@@ -0,0 +1,26 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Implemented by {@code FutureTask} and {@code ForkJoinTask} when the agent is loaded before them.
+ * It gives each task a field to carry the MDC snapshot captured at submission, so the executors
+ * keep handling the very task they were given.
+ */
+public interface MdcContextHolder {
+
+  /**
+   * Returns the MDC snapshot captured for this task.
+   *
+   * @return Captured snapshot, or null if the task was not submitted to an instrumented executor
+   */
+  @Nullable
+  Object getPreservedMdcContext();
+
+  /**
+   * Stores the MDC snapshot captured for this task.
+   *
+   * @param context Snapshot to be stored
+   */
+  void setPreservedMdcContext(@Nullable Object context);
+}
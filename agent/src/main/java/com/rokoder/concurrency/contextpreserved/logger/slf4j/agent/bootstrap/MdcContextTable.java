@@ -0,0 +1,120 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * MDC snapshots of tasks which cannot carry one themselves, like lambdas or any task once the
+ * agent is attached to a running JVM. A snapshot is pending until the task runs and is taken by
+ * that run. Tasks are compared by identity and weakly referenced, so a task which is dropped
+ * without being run does not leak its snapshot.
+ */
+final class MdcContextTable {
+  // Keys are either a Key, which weakly references the task, or a LookupKey. Lookups do not need
+  // to be enqueued, so they use the cheaper LookupKey.
+  private final ConcurrentHashMap<Object, Object> contexts = new ConcurrentHashMap<>();
+  private final ReferenceQueue<Object> staleKeys = new ReferenceQueue<>();
+
+  void put(Object task, Object context) {
+    expungeStaleKeys();
+    contexts.put(new Key(task, staleKeys), context);
+  }
+
+  /**
+   * Stores the snapshot unless one is still pending for the task.
+   *
+   * @return true if stored, false if the task already has a pending snapshot
+   */
+  boolean putIfAbsent(Object task, Object context) {
+    expungeStaleKeys();
+    return contexts.putIfAbsent(new Key(task, staleKeys), context) == null;
+  }
+
+  @Nullable
+  Object get(Object task) {
+    // Most of the tasks run by the executors are never in the table, no need to build a key then
+    return contexts.isEmpty() ? null : contexts.get(new LookupKey(task));
+  }
+
+  @Nullable
+  Object remove(Object task) {
+    return contexts.isEmpty() ? null : contexts.remove(new LookupKey(task));
+  }
+
+  // Visible for testing only
+  int size() {
+    expungeStaleKeys();
+    return contexts.size();
+  }
+
+  private void expungeStaleKeys() {
+    for (Reference<?> staleKey = staleKeys.poll(); staleKey != null; staleKey = staleKeys.poll()) {
+      contexts.remove(staleKey);
+    }
+  }
+
+  // Package private for testing only, a map lookup compares keys of distinct tasks only on an
+  // identity hash collision.
+  static final class Key extends WeakReference<Object> {
+    private final int hash;
+
+    Key(Object task, ReferenceQueue<Object> queue) {
+      super(task, queue);
+      this.hash = System.identityHashCode(task);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @SuppressFBWarnings(value = {"NP_METHOD_PARAMETER_TIGHTENS_ANNOTATION",
+        "EQ_CHECK_FOR_OPERAND_NOT_COMPATIBLE_WITH_THIS"},
+        justification = "It does not change nullness, keys of the same task are equal whatever "
+            + "their type")
+    @Override
+    public boolean equals(@Nullable Object other) {
+      if (this == other) {
+        return true;
+      }
+      Object task = get();
+      if (task == null) {
+        return false;
+      }
+      if (other instanceof Key) {
+        return task == ((Key) other).get();
+      }
+      return other instanceof LookupKey && task == ((LookupKey) other).task;
+    }
+  }
+
+  // Package private for testing only
+  static final class LookupKey {
+    private final Object task;
+
+    LookupKey(Object task) {
+      this.task = task;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(task);
+    }
+
+    @SuppressFBWarnings(value = {"NP_METHOD_PARAMETER_TIGHTENS_ANNOTATION",
+        "EQ_CHECK_FOR_OPERAND_NOT_COMPATIBLE_WITH_THIS"},
+        justification = "It does not change nullness, keys of the same task are equal whatever "
+            + "their type")
+    @Override
+    public boolean equals(@Nullable Object other) {
+      if (other instanceof LookupKey) {
+        return task == ((LookupKey) other).task;
+      }
+      return other instanceof Key && task == ((Key) other).get();
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap;
+
+import java.util.Objects;
+
+/**
+ * Runs a {@link Runnable} with the MDC snapshot captured when it was handed over and restores the
+ * previous context afterwards. It is only used where the decorated task stays private to the JDK,
+ * like the thread per task executor of {@code CompletableFuture}.
+ */
+public final class MdcPreservedRunnable implements Runnable {
+  private final Runnable delegate;
+  private final Object context;
+
+  MdcPreservedRunnable(Runnable delegate, Object context) {
+    this.delegate = Objects.requireNonNull(delegate, "delegate cannot be null");
+    this.context = Objects.requireNonNull(context, "context cannot be null");
+  }
+
+  @Override
+  public void run() {
+    Object previous = MdcBridge.applyContext(context);
+    try {
+      delegate.run();
+    } finally {
+      MdcBridge.restore(previous);
+    }
+  }
+}
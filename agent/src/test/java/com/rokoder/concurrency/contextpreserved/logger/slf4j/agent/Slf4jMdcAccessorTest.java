@@ -0,0 +1,47 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap.MdcBridge;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+final class Slf4jMdcAccessorTest {
+  private static final String MDC_KEY = "test-key";
+
+  @AfterEach
+  void tearDown() {
+    MDC.clear();
+  }
+
+  @Test
+  void testRunsWithCapturedContextAndRestoresWorkerContext() {
+    Slf4jMdcAccessor.install();
+    AtomicReference<String> captured = new AtomicReference<>();
+    MDC.put(MDC_KEY, "submitter-value");
+    Runnable wrapped = MdcBridge.wrap(() -> captured.set(MDC.get(MDC_KEY)));
+
+    MDC.put(MDC_KEY, "worker-value");
+    wrapped.run();
+
+    assertThat(captured.get(), equalTo("submitter-value"));
+    assertThat(MDC.get(MDC_KEY), equalTo("worker-value"));
+  }
+
+  @Test
+  void testRunsWithEmptyContextAndRestoresWorkerContext() {
+    Slf4jMdcAccessor.install();
+    AtomicReference<String> captured = new AtomicReference<>("unexpected");
+    Runnable wrapped = MdcBridge.wrap(() -> captured.set(MDC.get(MDC_KEY)));
+
+    MDC.put(MDC_KEY, "worker-value");
+    wrapped.run();
+
+    assertThat(captured.get(), nullValue());
+    assertThat(MDC.get(MDC_KEY), equalTo("worker-value"));
+  }
+}
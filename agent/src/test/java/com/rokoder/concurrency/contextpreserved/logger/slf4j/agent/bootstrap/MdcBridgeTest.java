@@ -0,0 +1,338 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+final class MdcBridgeTest {
+  private static final Map<String, String> SUBMITTER_CONTEXT =
+      Collections.singletonMap("test-key", "submitter-value");
+  private static final Map<String, String> WORKER_CONTEXT =
+      Collections.singletonMap("test-key", "worker-value");
+
+  private final TestMdcAccessor mdcAccessor = new TestMdcAccessor();
+
+  @BeforeEach
+  void setUp() {
+    MdcBridge.install(mdcAccessor);
+  }
+
+  @Test
+  void testInstallNullAccessor() {
+    assertThrows(NullPointerException.class, () -> MdcBridge.install(null));
+  }
+
+  @Test
+  void testContextHolderTask() {
+    HolderTask task = new HolderTask();
+    mdcAccessor.context = SUBMITTER_CONTEXT;
+    MdcBridge.capture(task);
+
+    mdcAccessor.context = WORKER_CONTEXT;
+    MdcBridge.run(task);
+
+    assertThat(task.preservedMdcContext, equalTo(SUBMITTER_CONTEXT));
+    assertThat(task.capturedContext.get(), equalTo(SUBMITTER_CONTEXT));
+    assertThat(mdcAccessor.context, equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testPlainTask() {
+    AtomicReference<Map<String, String>> captured = new AtomicReference<>();
+    Runnable task = () -> captured.set(mdcAccessor.context);
+    mdcAccessor.context = SUBMITTER_CONTEXT;
+    MdcBridge.capture(task);
+
+    mdcAccessor.context = WORKER_CONTEXT;
+    MdcBridge.run(task);
+
+    assertThat(captured.get(), equalTo(SUBMITTER_CONTEXT));
+    assertThat(mdcAccessor.context, equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testPlainTaskContextIsTakenByRun() {
+    AtomicReference<Map<String, String>> captured = new AtomicReference<>();
+    Runnable task = () -> captured.set(mdcAccessor.context);
+    mdcAccessor.context = SUBMITTER_CONTEXT;
+    MdcBridge.capture(task);
+
+    mdcAccessor.context = WORKER_CONTEXT;
+    MdcBridge.run(task);
+    MdcBridge.run(task);
+
+    assertThat(captured.get(), equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testPeriodicTaskKeepsContext() {
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    try {
+      RunnableScheduledFuture<?> periodicTask = (RunnableScheduledFuture<?>) executor
+          .scheduleAtFixedRate(() -> {
+          }, 1, 1, TimeUnit.HOURS);
+      RunnableScheduledFuture<?> delayedTask = (RunnableScheduledFuture<?>) executor
+          .schedule(() -> {
+          }, 1, TimeUnit.HOURS);
+      mdcAccessor.context = SUBMITTER_CONTEXT;
+      MdcBridge.capture(periodicTask);
+      MdcBridge.capture(delayedTask);
+
+      mdcAccessor.context = WORKER_CONTEXT;
+      MdcBridge.restore(MdcBridge.apply(periodicTask));
+      MdcBridge.restore(MdcBridge.apply(delayedTask));
+
+      assertThat(MdcBridge.apply(periodicTask), equalTo(WORKER_CONTEXT));
+      assertThat(mdcAccessor.context, equalTo(SUBMITTER_CONTEXT));
+      assertThat(MdcBridge.apply(delayedTask), nullValue());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testCaptureOrWrapPlainTask() {
+    AtomicReference<Map<String, String>> captured = new AtomicReference<>();
+    Runnable task = () -> captured.set(mdcAccessor.context);
+    mdcAccessor.context = SUBMITTER_CONTEXT;
+
+    assertThat(MdcBridge.captureOrWrap(task), sameInstance(task));
+    mdcAccessor.context = WORKER_CONTEXT;
+    MdcBridge.run(task);
+
+    assertThat(captured.get(), equalTo(SUBMITTER_CONTEXT));
+    assertThat(mdcAccessor.context, equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testCaptureOrWrapPendingTask() {
+    Map<String, String> otherContext = Collections.singletonMap("test-key", "other-value");
+    AtomicReference<Map<String, String>> captured = new AtomicReference<>();
+    Runnable task = () -> captured.set(mdcAccessor.context);
+    mdcAccessor.context = SUBMITTER_CONTEXT;
+    final Runnable first = MdcBridge.captureOrWrap(task);
+    mdcAccessor.context = otherContext;
+    final Runnable second = MdcBridge.captureOrWrap(task);
+
+    assertThat(first, sameInstance(task));
+    assertThat(second, instanceOf(MdcPreservedRunnable.class));
+    assertThat(MdcBridge.apply(second), nullValue());
+    assertThat(MdcBridge.captureOrWrap(second), sameInstance(second));
+
+    mdcAccessor.context = WORKER_CONTEXT;
+    MdcBridge.run(first);
+    assertThat(captured.get(), equalTo(SUBMITTER_CONTEXT));
+    MdcBridge.run(second);
+    assertThat(captured.get(), equalTo(otherContext));
+    assertThat(mdcAccessor.context, equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testCaptureOrWrapContextHolderTask() {
+    HolderTask task = new HolderTask();
+    mdcAccessor.context = SUBMITTER_CONTEXT;
+
+    assertThat(MdcBridge.captureOrWrap(task), sameInstance(task));
+    assertThat(task.preservedMdcContext, equalTo(SUBMITTER_CONTEXT));
+  }
+
+  @Test
+  void testEmptyContextIsClearedForTask() {
+    AtomicReference<Map<String, String>> captured = new AtomicReference<>(WORKER_CONTEXT);
+    Runnable task = () -> captured.set(mdcAccessor.context);
+    mdcAccessor.context = new HashMap<>();
+    MdcBridge.capture(task);
+
+    mdcAccessor.context = WORKER_CONTEXT;
+    MdcBridge.run(task);
+
+    assertThat(captured.get(), nullValue());
+    assertThat(mdcAccessor.context, equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testEmptyWorkerContextIsRestored() {
+    Runnable task = () -> {
+    };
+    mdcAccessor.context = SUBMITTER_CONTEXT;
+    MdcBridge.capture(task);
+
+    mdcAccessor.context = null;
+    MdcBridge.run(task);
+
+    assertThat(mdcAccessor.context, nullValue());
+  }
+
+  @Test
+  void testContextIsRestoredWhenTaskThrows() {
+    Runnable task = () -> {
+      throw new IllegalStateException("test-exception");
+    };
+    mdcAccessor.context = SUBMITTER_CONTEXT;
+    MdcBridge.capture(task);
+
+    mdcAccessor.context = WORKER_CONTEXT;
+    assertThrows(IllegalStateException.class, () -> MdcBridge.run(task));
+
+    assertThat(mdcAccessor.context, equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testTaskNotCapturedRunsWithWorkerContext() {
+    AtomicReference<Map<String, String>> captured = new AtomicReference<>();
+    mdcAccessor.context = WORKER_CONTEXT;
+    MdcBridge.run(() -> captured.set(mdcAccessor.context));
+
+    assertThat(captured.get(), equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testNullTask() {
+    MdcBridge.capture(null);
+
+    assertThat(MdcBridge.apply(null), nullValue());
+    MdcBridge.restore(null);
+    assertThat(MdcBridge.wrap(null), nullValue());
+    assertThat(MdcBridge.captureOrWrap(null), nullValue());
+  }
+
+  @Test
+  void testWrap() {
+    AtomicReference<Map<String, String>> captured = new AtomicReference<>();
+    mdcAccessor.context = SUBMITTER_CONTEXT;
+    Runnable wrapped = MdcBridge.wrap(() -> captured.set(mdcAccessor.context));
+
+    mdcAccessor.context = WORKER_CONTEXT;
+    wrapped.run();
+
+    assertThat(captured.get(), equalTo(SUBMITTER_CONTEXT));
+    assertThat(mdcAccessor.context, equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testWrapEmptyContext() {
+    AtomicReference<Map<String, String>> captured = new AtomicReference<>(WORKER_CONTEXT);
+    Runnable wrapped = MdcBridge.wrap(() -> captured.set(mdcAccessor.context));
+
+    assertThat(wrapped, instanceOf(MdcPreservedRunnable.class));
+    mdcAccessor.context = WORKER_CONTEXT;
+    wrapped.run();
+
+    assertThat(captured.get(), nullValue());
+    assertThat(mdcAccessor.context, equalTo(WORKER_CONTEXT));
+  }
+
+  @Test
+  void testTaskIsNotWrappedTwice() {
+    Runnable wrapped = MdcBridge.wrap(() -> {
+    });
+
+    assertThat(MdcBridge.wrap(wrapped), sameInstance(wrapped));
+  }
+
+  @Test
+  void testSlf4jNotVisible() {
+    mdcAccessor.linkageError = true;
+    Runnable runnable = () -> {
+    };
+    HolderTask task = new HolderTask();
+    MdcBridge.capture(task);
+
+    assertThat(task.preservedMdcContext, nullValue());
+    assertThat(MdcBridge.wrap(runnable), sameInstance(runnable));
+    assertThat(MdcBridge.captureOrWrap(runnable), sameInstance(runnable));
+  }
+
+  @Test
+  void testWarningIsPrintedOnceWhenSlf4jNotVisible() throws UnsupportedEncodingException {
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    PrintStream systemErr = System.err;
+    System.setErr(new PrintStream(errors, true, StandardCharsets.UTF_8.name()));
+    try {
+      mdcAccessor.linkageError = true;
+      MdcBridge.capture(new HolderTask());
+      MdcBridge.capture(new HolderTask());
+    } finally {
+      System.setErr(systemErr);
+    }
+
+    String warning = new String(errors.toByteArray(), StandardCharsets.UTF_8);
+    assertThat(warning, containsString("the MDC is not preserved anymore"));
+    assertThat(warning.trim().split("\\R").length, equalTo(1));
+  }
+
+  @Test
+  void testNotInstalled() {
+    final Runnable wrapped = MdcBridge.wrap(() -> {
+    });
+    mdcAccessor.linkageError = true;
+    HolderTask task = new HolderTask();
+    MdcBridge.capture(task);
+    task.preservedMdcContext = SUBMITTER_CONTEXT;
+
+    // Once uninstalled nothing is captured, applied or restored anymore
+    MdcBridge.capture(task);
+    MdcBridge.run(task);
+    wrapped.run();
+    MdcBridge.restore(WORKER_CONTEXT);
+
+    assertThat(task.capturedContext.get(), nullValue());
+    assertThat(mdcAccessor.context, nullValue());
+  }
+
+  private static final class TestMdcAccessor implements MdcAccessor {
+    private Map<String, String> context;
+    private boolean linkageError;
+
+    @Override
+    public Map<String, String> get() {
+      if (linkageError) {
+        throw new NoClassDefFoundError("org/slf4j/MDC");
+      }
+      return context;
+    }
+
+    @Override
+    public void set(Map<String, String> context) {
+      this.context = context;
+    }
+  }
+
+  private final class HolderTask implements Runnable, MdcContextHolder {
+    private final AtomicReference<Map<String, String>> capturedContext = new AtomicReference<>();
+    private Object preservedMdcContext;
+
+    @Override
+    public void run() {
+      capturedContext.set(mdcAccessor.context);
+    }
+
+    @Override
+    public Object getPreservedMdcContext() {
+      return preservedMdcContext;
+    }
+
+    @Override
+    public void setPreservedMdcContext(Object context) {
+      preservedMdcContext = context;
+    }
+  }
+}
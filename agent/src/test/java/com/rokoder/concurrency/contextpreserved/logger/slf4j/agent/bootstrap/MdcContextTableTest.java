@@ -0,0 +1,110 @@
+package com.rokoder.concurrency.contextpreserved.logger.slf4j.agent.bootstrap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+final class MdcContextTableTest {
+  private final MdcContextTable contextTable = new MdcContextTable();
+
+  @Test
+  void testTasksAreComparedByIdentity() {
+    Object context = new Object();
+    String task = new String("test-task");
+    contextTable.put(task, context);
+
+    assertThat(contextTable.get(task), sameInstance(context));
+    assertThat(contextTable.get(new String("test-task")), nullValue());
+  }
+
+  @Test
+  void testPutReplacesContext() {
+    Object task = new Object();
+    Object context = new Object();
+    contextTable.put(task, new Object());
+    contextTable.put(task, context);
+
+    assertThat(contextTable.get(task), sameInstance(context));
+    assertThat(contextTable.size(), equalTo(1));
+  }
+
+  @Test
+  void testDroppedTasksAreExpunged() throws InterruptedException {
+    contextTable.put(new Object(), new Object());
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (contextTable.size() > 0 && System.nanoTime() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertThat(contextTable.size(), equalTo(0));
+  }
+
+  @Test
+  void testPutIfAbsentKeepsPendingContext() {
+    Object task = new Object();
+    Object context = new Object();
+
+    assertThat(contextTable.putIfAbsent(task, context), equalTo(true));
+    assertThat(contextTable.putIfAbsent(task, new Object()), equalTo(false));
+    assertThat(contextTable.get(task), sameInstance(context));
+  }
+
+  @Test
+  void testRemoveTakesContext() {
+    Object task = new Object();
+    Object context = new Object();
+    contextTable.put(task, context);
+
+    assertThat(contextTable.remove(task), sameInstance(context));
+    assertThat(contextTable.remove(task), nullValue());
+    assertThat(contextTable.size(), equalTo(0));
+    assertThat(contextTable.putIfAbsent(task, context), equalTo(true));
+  }
+
+  @Test
+  void testEmptyTable() {
+    Object task = new Object();
+
+    assertThat(contextTable.get(task), nullValue());
+    assertThat(contextTable.remove(task), nullValue());
+  }
+
+  @Test
+  void testKeyEquals() {
+    Object task = new Object();
+    ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    MdcContextTable.Key key = new MdcContextTable.Key(task, queue);
+    MdcContextTable.Key clearedKey = new MdcContextTable.Key(task, queue);
+    clearedKey.clear();
+
+    assertThat(key.equals(key), equalTo(true));
+    assertThat(key.equals(new MdcContextTable.Key(task, queue)), equalTo(true));
+    assertThat(key.equals(new MdcContextTable.LookupKey(task)), equalTo(true));
+    assertThat(key.equals(new MdcContextTable.Key(new Object(), queue)), equalTo(false));
+    assertThat(key.equals(task), equalTo(false));
+    assertThat(key.equals(null), equalTo(false));
+    assertThat(clearedKey.equals(key), equalTo(false));
+    assertThat(key.hashCode(), equalTo(System.identityHashCode(task)));
+  }
+
+  @Test
+  void testLookupKeyEquals() {
+    Object task = new Object();
+    MdcContextTable.LookupKey lookupKey = new MdcContextTable.LookupKey(task);
+
+    assertThat(lookupKey.equals(new MdcContextTable.Key(task, new ReferenceQueue<>())),
+        equalTo(true));
+    assertThat(lookupKey.equals(new MdcContextTable.LookupKey(task)), equalTo(true));
+    assertThat(lookupKey.equals(new MdcContextTable.LookupKey(new Object())), equalTo(false));
+    assertThat(lookupKey.equals(task), equalTo(false));
+    assertThat(lookupKey.equals(null), equalTo(false));
+    assertThat(lookupKey.hashCode(), equalTo(System.identityHashCode(task)));
+  }
+}
@@ -8,4 +8,4 @@
  */
 
 rootProject.name = "context-preserved-slf4j"
-include("lib")
+include("lib", "agent")